@@ -1,14 +1,31 @@
+import backingstore.BackingStore;
+import backingstore.ChangeEvent;
+import backingstore.ChangeListener;
 import backingstore.InMemoryBackingStore;
+import cache.InMemoryCache;
 import cache.TurboCache;
 import config.CacheConfig;
 import config.CacheConfigLoader;
+import policy.EvictionPolicy;
+import policy.ExpirationStrategy;
+import policy.Expiry;
+import policy.LoadingMode;
+import policy.WritePolicy;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class Main {
+    private static int failures = 0;
+
     public static void main(String[] args) throws InterruptedException, IOException {
 
 
@@ -64,6 +81,336 @@ public class Main {
 //
 //        //Test case 8: Refresh Scheduler
 //        testRefreshScheduler(cache, config);
+
+        //Test case 9: Allocation free hit path
+        testHitPathAllocation();
+
+        //Test case 10: Stale load loses to a newer put
+        testStaleLoadAfterPut();
+
+        //Test case 11: Stale load loses to a delete
+        testStaleLoadAfterDelete();
+
+        //Test case 12: Change feed publishes versioned events in batches
+        testChangeFeed();
+
+        //Test case 13: NONE entries do not expire
+        testNoExpiration();
+
+        //Test case 14: Expire after access
+        testExpireAfterAccess();
+
+        //Test case 15: Per entry expiry of a loaded value
+        testPerEntryExpiry();
+
+        //Test case 16: Stale load loses to an upsert of a key that was not cached
+        testStaleLoadAfterUncachedUpsert();
+
+        //Test case 17: External store writes reach the cache through the change feed
+        testExternalWritesThroughChangeFeed();
+
+        //Test case 18: Store without change feed falls back to polling
+        testPollingFallback();
+
+        //Test case 19: Own write back puts are not echoed back to the cache
+        testWriteBackNotEchoed();
+
+        //Test case 20: Expiry is asked for the create lifetime only for new values
+        testExpiryCallbacks();
+
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        boolean passed = expected == null ? actual == null : expected.equals(actual);
+        if (!passed) failures++;
+        System.out.println(name + ": Expected: " + expected + ", Actual: " + actual + (passed ? "" : " FAILED"));
+    }
+
+    private static void testStaleLoadAfterPut() {
+        System.out.println("\nTest Case 10: Stale load loses to a newer put");
+        InMemoryCache<String, String> inMemoryCache = new InMemoryCache<>(10, ExpirationStrategy.NONE);
+        inMemoryCache.put("key1", "value6", 0, 6);
+        check("Stale load stored", false, inMemoryCache.putIfNewer("key1", "value5", 0, 5));
+        check("Older put stored", "value6", putAndGet(inMemoryCache, "key1", "value5", 5));
+        check("Newer load stored", true, inMemoryCache.putIfNewer("key1", "value7", 0, 7));
+        check("Stale event applied", false, inMemoryCache.replaceIfNewer("key1", "value6", 0, 6));
+        check("Value", "value7", inMemoryCache.get("key1").getValue());
+    }
+
+    private static String putAndGet(InMemoryCache<String, String> inMemoryCache, String key, String value, long version) {
+        inMemoryCache.put(key, value, 0, version);
+        return inMemoryCache.get(key).getValue();
+    }
+
+    private static void testStaleLoadAfterDelete() {
+        System.out.println("\nTest Case 11: Stale load loses to a delete");
+        InMemoryCache<String, String> inMemoryCache = new InMemoryCache<>(10, ExpirationStrategy.NONE);
+        inMemoryCache.put("key1", "value5", 0, 5);
+        check("Delete applied", true, inMemoryCache.invalidate("key1", 6));
+        check("Stale load stored", false, inMemoryCache.putIfNewer("key1", "value5", 0, 5));
+        check("Value after stale load", null, inMemoryCache.get("key1"));
+        check("Load after delete stored", true, inMemoryCache.putIfNewer("key1", "value7", 0, 7));
+        check("Older delete applied", false, inMemoryCache.invalidate("key1", 6));
+        check("Value", "value7", inMemoryCache.get("key1").getValue());
+    }
+
+    private static void testStaleLoadAfterUncachedUpsert() {
+        System.out.println("\nTest Case 16: Stale load loses to an upsert of a key that was not cached");
+        InMemoryCache<String, String> inMemoryCache = new InMemoryCache<>(10, ExpirationStrategy.NONE);
+        // A miss read value5, then the store wrote value6 and its event arrived before the load was cached
+        check("Upsert of uncached key applied", false, inMemoryCache.replaceIfNewer("key1", "value6", 0, 6));
+        check("Stale load stored", false, inMemoryCache.putIfNewer("key1", "value5", 0, 5));
+        check("Value after stale load", null, inMemoryCache.get("key1"));
+        check("Load of the upserted version stored", true, inMemoryCache.putIfNewer("key1", "value6", 0, 6));
+        check("Value", "value6", inMemoryCache.get("key1").getValue());
+    }
+
+    private static void testExternalWritesThroughChangeFeed() throws InterruptedException {
+        System.out.println("\nTest Case 17: External store writes reach the cache through the change feed");
+        InMemoryBackingStore<String, String> store = new InMemoryBackingStore<>();
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.NONE, 60_000), store);
+        cache.put("key1", "value1");
+        cache.put("key2", "value2");
+
+        store.save("key1", "externalValue1");
+        store.remove("key2");
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        // key1 is updated in place and key2 invalidated, a reload would not keep the size at 1
+        check("Size", 1, cache.size());
+        check("Updated in place", "externalValue1", cache.get("key1"));
+        check("Deleted key", null, cache.get("key2"));
+    }
+
+    private static void testPollingFallback() throws InterruptedException {
+        System.out.println("\nTest Case 18: Store without change feed falls back to polling");
+        MapBackingStore<String, String> store = new MapBackingStore<>();
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.NONE, 60_000, 200), store);
+        cache.put("key1", "value1");
+
+        store.save("key1", "externalValue1");
+        TimeUnit.MILLISECONDS.sleep(600);
+
+        check("Size", 1, cache.size());
+        check("Refreshed by polling", "externalValue1", cache.get("key1"));
+    }
+
+    private static void testWriteBackNotEchoed() throws InterruptedException {
+        System.out.println("\nTest Case 19: Own write back puts are not echoed back to the cache");
+        // Holds the write back thread after saving valueA, so an echo of valueA would stay visible
+        InMemoryBackingStore<String, String> store = new InMemoryBackingStore<>() {
+            @Override
+            public long saveVersioned(String key, String value, ChangeListener<String, String> origin) {
+                long version = super.saveVersioned(key, value, origin);
+                if ("valueA".equals(value)) sleepQuietly(300);
+                return version;
+            }
+        };
+        List<ChangeEvent<String, String>> otherSubscriber = new CopyOnWriteArrayList<>();
+        store.subscribe(otherSubscriber::addAll);
+        CacheConfig config = testConfig(ExpirationStrategy.NONE, 60_000);
+        config.setWritePolicy(WritePolicy.WRITE_BACK);
+        TurboCache<String, String> cache = new TurboCache<>(config, store);
+
+        cache.put("key1", "valueA");
+        cache.put("key1", "valueB");
+        // Read while the deferred saves are published, the cache must never go back to valueA
+        boolean wentBackwards = false;
+        long deadline = System.currentTimeMillis() + 500;
+        while (System.currentTimeMillis() < deadline) {
+            if (!"valueB".equals(cache.get("key1"))) wentBackwards = true;
+        }
+        check("Own write went backwards", false, wentBackwards);
+        check("Events for other subscriber", 2, otherSubscriber.size());
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Backing store without versions or change feed, relies on the BackingStore defaults.
+     */
+    private static class MapBackingStore<K, V> implements BackingStore<K, V> {
+        private final Map<K, V> store = new ConcurrentHashMap<>();
+
+        @Override
+        public V load(K key) { return store.get(key); }
+        @Override
+        public void save(K key, V value) { store.put(key, value); }
+        @Override
+        public void remove(K key) { store.remove(key); }
+        @Override
+        public void save(K key, V value, WritePolicy writePolicy) { save(key, value); }
+        @Override
+        public Map<K, V> getAllEntries() { return new ConcurrentHashMap<>(store); }
+    }
+
+    private static void testChangeFeed() throws InterruptedException {
+        System.out.println("\nTest Case 12: Change feed publishes versioned events in batches");
+        InMemoryBackingStore<String, String> store = new InMemoryBackingStore<>();
+        List<ChangeEvent<String, String>> received = new CopyOnWriteArrayList<>();
+        store.subscribe(received::addAll);
+
+        long first = store.saveVersioned("key1", "value1");
+        long second = store.saveVersioned("key1", "value2");
+        store.remove("key1");
+        store.remove("key1"); // nothing to delete, no event
+        TimeUnit.MILLISECONDS.sleep(200);
+
+        check("Versions increase", true, second > first);
+        check("Events", 3, received.size());
+        check("Event order", List.of(ChangeEvent.Type.UPSERT, ChangeEvent.Type.UPSERT, ChangeEvent.Type.DELETE),
+                received.stream().map(ChangeEvent::getType).toList());
+        check("Versions match writes", List.of(first, second),
+                received.stream().limit(2).map(ChangeEvent::getVersion).toList());
+        check("Delete version", true, received.size() == 3 && received.get(2).getVersion() > second);
+    }
+
+    private static void testNoExpiration() throws InterruptedException {
+        System.out.println("\nTest Case 13: NONE entries do not expire");
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.NONE, 100));
+        cache.put("key1", "value1");
+        TimeUnit.MILLISECONDS.sleep(400);
+        check("Size after ttl", 1, cache.size());
+        check("Value after ttl", "value1", cache.get("key1"));
+    }
+
+    private static void testExpireAfterAccess() throws InterruptedException {
+        System.out.println("\nTest Case 14: Expire after access");
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.ACCESS, 200));
+        cache.put("hotKey", "hotValue");
+        cache.put("idleKey", "idleValue");
+        for (int i = 0; i < 16; i++) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            check("Read hot key", "hotValue", cache.get("hotKey"));
+        }
+        // The idle key expired 200 ms after its write and is removed by the cleanup sweep
+        check("Size", 1, cache.size());
+        check("Hot key still cached", "hotValue", cache.get("hotKey"));
+    }
+
+    private static void testExpiryCallbacks() {
+        System.out.println("\nTest Case 20: Expiry is asked for the create lifetime only for new values");
+        AtomicInteger creates = new AtomicInteger();
+        AtomicInteger updates = new AtomicInteger();
+        Expiry<String, String> expiry = new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, String value, long currentTime) {
+                creates.incrementAndGet();
+                return 60_000;
+            }
+
+            @Override
+            public long expireAfterUpdate(String key, String value, long currentTime, long currentDuration) {
+                updates.incrementAndGet();
+                return 60_000;
+            }
+        };
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.TTL, 60_000), expiry);
+
+        cache.put("key1", "value1");
+        check("Creates after new key", 1, creates.get());
+        check("Updates after new key", 0, updates.get());
+
+        cache.put("key1", "value2");
+        check("Creates after update", 1, creates.get());
+        check("Updates after update", 1, updates.get());
+    }
+
+    private static void testPerEntryExpiry() throws InterruptedException {
+        System.out.println("\nTest Case 15: Per entry expiry of a loaded value");
+        Expiry<String, String> expiry = (key, value, currentTime) -> key.startsWith("short") ? 100 : 60_000;
+        TurboCache<String, String> cache = new TurboCache<>(testConfig(ExpirationStrategy.TTL, 60_000), expiry);
+        cache.put("shortKey", "shortValue");
+        cache.put("longKey", "longValue");
+
+        // Drop both from the cache only, so the next gets load them from the backing store
+        cache.remove("shortKey");
+        cache.remove("longKey");
+        check("Load short key", "shortValue", cache.get("shortKey"));
+        check("Load long key", "longValue", cache.get("longKey"));
+
+        TimeUnit.MILLISECONDS.sleep(400);
+        // The cleanup sweep runs every ttl (60 s here), so the expired entry is dropped by the read itself
+        check("Short key after its lifetime", null, cache.get("shortKey"));
+        check("Long key still cached", "longValue", cache.get("longKey"));
+        check("Size", 1, cache.size());
+    }
+
+    /**
+     * Bytes the allocation counter may report for the measurement itself.
+     */
+    private static final long ALLOCATION_BUDGET_BYTES = 256;
+
+    /**
+     * Checks that a cache hit allocates nothing, for every hit path: no expiry bookkeeping (NONE),
+     * expire after access, and a per entry expiry that extends the lifetime on read.
+     * The caches never expire within the measurement, so a slow JVM can not turn hits into misses.
+     */
+    private static void testHitPathAllocation() {
+        System.out.println("\nTest Case 9: Allocation free hit path");
+        Expiry<String, String> extendOnRead = new Expiry<>() {
+            @Override
+            public long expireAfterCreate(String key, String value, long currentTime) {
+                return 60_000;
+            }
+
+            @Override
+            public long expireAfterRead(String key, String value, long currentTime, long currentDuration) {
+                return 60_000;
+            }
+        };
+        checkHitAllocation("NONE", new TurboCache<>(testConfig(ExpirationStrategy.NONE, 60_000)));
+        checkHitAllocation("ACCESS", new TurboCache<>(testConfig(ExpirationStrategy.ACCESS, 60_000)));
+        checkHitAllocation("Expiry", new TurboCache<>(testConfig(ExpirationStrategy.TTL, 60_000), extendOnRead));
+    }
+
+    /**
+     * Uses the per thread allocation counter of the JVM. The hit path is warmed up first so that
+     * JIT compilation is not measured, and the raw byte delta is compared against a fixed budget.
+     */
+    private static void checkHitAllocation(String name, TurboCache<String, String> cache) {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int iterations = 1_000_000;
+
+        cache.put("hotKey", "hotValue");
+        for (int i = 0; i < iterations; i++) {
+            cache.get("hotKey");
+        }
+
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            cache.get("hotKey");
+        }
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        long allocated = after - before;
+        System.out.println(name + " bytes allocated by " + iterations + " hits: " + allocated);
+        check(name + " hits within " + ALLOCATION_BUDGET_BYTES + " bytes", true, allocated <= ALLOCATION_BUDGET_BYTES);
+    }
+
+    private static CacheConfig testConfig(ExpirationStrategy expirationStrategy, long ttl) {
+        return testConfig(expirationStrategy, ttl, 60_000);
+    }
+
+    private static CacheConfig testConfig(ExpirationStrategy expirationStrategy, long ttl, long refreshDuration) {
+        CacheConfig config = new CacheConfig();
+        config.setMaxSize(100);
+        config.setTtl(ttl);
+        config.setRefreshDuration(refreshDuration);
+        config.setExpirationStrategy(expirationStrategy);
+        config.setEvictionPolicy(EvictionPolicy.LRU);
+        config.setWritePolicy(WritePolicy.WRITE_THROUGH);
+        config.setLoadingMode(LoadingMode.SYNC);
+        return config;
     }
 
     private static void testRefreshScheduler(TurboCache<String, String> cache,
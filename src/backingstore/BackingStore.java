@@ -11,4 +11,39 @@ public interface BackingStore<K, V> {
     void save(K key, V value, WritePolicy writePolicy);
 
      Map<K, V> getAllEntries();
+
+    /**
+     * Loads the value with the version it was written at.
+     * Stores that do not version values return version 0, which the cache treats as always current.
+     */
+    default VersionedValue<V> loadVersioned(K key) {
+        V value = load(key);
+        return value == null ? null : new VersionedValue<>(value, 0L);
+    }
+
+    /**
+     * Saves the value and returns the version assigned to the write, 0 if the store does not version values.
+     */
+    default long saveVersioned(K key, V value) {
+        save(key, value);
+        return 0L;
+    }
+
+    /**
+     * Saves the value on behalf of a change feed subscriber; the change is not published back to {@code origin}.
+     */
+    default long saveVersioned(K key, V value, ChangeListener<K, V> origin) {
+        return saveVersioned(key, value);
+    }
+
+    /**
+     * Subscribes to the change feed of this store.
+     * @return false when the store does not publish changes and callers have to fall back to polling
+     */
+    default boolean subscribe(ChangeListener<K, V> listener) {
+        return false;
+    }
+
+    default void unsubscribe(ChangeListener<K, V> listener) {
+    }
 }
@@ -0,0 +1,53 @@
+package backingstore;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * A single change published by a backing store on its change feed.
+ * A DELETE event carries no value; an UPSERT event carries the value written at {@code version}.
+ */
+public class ChangeEvent<K, V> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    private final Type type;
+    private final K key;
+    private final V value;
+    private final long version;
+    /**
+     * Subscriber that caused the change, it is not delivered back to it. Null for external writes.
+     */
+    private final transient ChangeListener<K, V> origin;
+
+    private ChangeEvent(Type type, K key, V value, long version, ChangeListener<K, V> origin) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+        this.version = version;
+        this.origin = origin;
+    }
+
+    public static <K, V> ChangeEvent<K, V> upsert(K key, V value, long version) {
+        return upsert(key, value, version, null);
+    }
+
+    public static <K, V> ChangeEvent<K, V> upsert(K key, V value, long version, ChangeListener<K, V> origin) {
+        return new ChangeEvent<>(Type.UPSERT, key, value, version, origin);
+    }
+
+    public static <K, V> ChangeEvent<K, V> delete(K key, long version) {
+        return new ChangeEvent<>(Type.DELETE, key, null, version, null);
+    }
+
+    public Type getType() { return type; }
+    public K getKey() { return key; }
+    public V getValue() { return value; }
+    public long getVersion() { return version; }
+    public ChangeListener<K, V> getOrigin() { return origin; }
+}
@@ -0,0 +1,12 @@
+package backingstore;
+
+import java.util.List;
+
+/**
+ * Subscriber of a backing store change feed.
+ * Events are delivered in batches, in the order the backing store applied them.
+ */
+@FunctionalInterface
+public interface ChangeListener<K, V> {
+    void onChanges(List<ChangeEvent<K, V>> events);
+}
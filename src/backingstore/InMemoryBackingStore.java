@@ -2,30 +2,88 @@ package backingstore;
 
 import policy.WritePolicy;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class InMemoryBackingStore<K, V> implements BackingStore<K, V> {
-    private final Map<K, V> store = new ConcurrentHashMap<>();
+    private final Logger logger = Logger.getLogger(InMemoryBackingStore.class.getName());
+
+    private final Map<K, VersionedValue<V>> store = new ConcurrentHashMap<>();
+
+    /**
+     * Store wide sequence used to version every write and delete.
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Change feed: writes enqueue events here and a single publisher thread drains
+     * whatever has accumulated and hands it to the listeners as one batch.
+     */
+    private final List<ChangeListener<K, V>> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<ChangeEvent<K, V>> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final transient ExecutorService publisher = Executors.newSingleThreadExecutor();
 
     @Override
     public V load(K key) {
+        VersionedValue<V> versioned = store.get(key);
+        return versioned == null ? null : versioned.getValue();
+    }
+
+    @Override
+    public VersionedValue<V> loadVersioned(K key) {
         return store.get(key);
     }
 
     @Override
     public void save(K key, V value) {
-        store.put(key, value);
+        saveVersioned(key, value);
+    }
+
+    @Override
+    public long saveVersioned(K key, V value) {
+        return saveVersioned(key, value, null);
+    }
+
+    @Override
+    public long saveVersioned(K key, V value, ChangeListener<K, V> origin) {
+        //Version is assigned inside compute so that per key versions follow the store order
+        VersionedValue<V> saved = store.compute(key, (k, old) -> {
+            VersionedValue<V> versioned = new VersionedValue<>(value, sequence.incrementAndGet());
+            //No event at all when the writer is the only subscriber
+            if (hasListenerOtherThan(origin)) {
+                publish(ChangeEvent.upsert(k, value, versioned.getVersion(), origin));
+            }
+            return versioned;
+        });
+        return saved.getVersion();
     }
 
     @Override
     public void remove(K key) {
-        store.remove(key);
+        store.computeIfPresent(key, (k, old) -> {
+            publish(ChangeEvent.delete(k, sequence.incrementAndGet()));
+            return null;
+        });
     }
 
     @Override
     public Map<K, V> getAllEntries() {
-        return new ConcurrentHashMap<>(store); // Return a copy to avoid external modification
+        Map<K, V> entries = new ConcurrentHashMap<>();
+        store.forEach((key, versioned) -> entries.put(key, versioned.getValue()));
+        return entries; // Return a copy to avoid external modification
     }
 
 
@@ -37,7 +95,70 @@ public class InMemoryBackingStore<K, V> implements BackingStore<K, V> {
         }
     }
 
+    @Override
+    public boolean subscribe(ChangeListener<K, V> listener) {
+        listeners.add(listener);
+        return true;
+    }
+
+    @Override
+    public void unsubscribe(ChangeListener<K, V> listener) {
+        listeners.remove(listener);
+    }
+
+    private boolean hasListenerOtherThan(ChangeListener<K, V> origin) {
+        int size = listeners.size();
+        return size > 1 || (size == 1 && (origin == null || !listeners.contains(origin)));
+    }
+
+    private void publish(ChangeEvent<K, V> event) {
+        if (listeners.isEmpty()) return;
+        pendingEvents.offer(event);
+        if (drainScheduled.compareAndSet(false, true)) {
+            publisher.execute(this::drainPendingEvents);
+        }
+    }
+
+    private void drainPendingEvents() {
+        //Reset before draining so that events offered while we drain schedule another run
+        drainScheduled.set(false);
+        List<ChangeEvent<K, V>> batch = new ArrayList<>();
+        ChangeEvent<K, V> event;
+        while ((event = pendingEvents.poll()) != null) {
+            batch.add(event);
+        }
+        if (batch.isEmpty()) return;
 
+        List<ChangeEvent<K, V>> events = Collections.unmodifiableList(batch);
+        for (ChangeListener<K, V> listener : listeners) {
+            List<ChangeEvent<K, V>> delivered = withoutOwnEvents(events, listener);
+            if (delivered.isEmpty()) continue;
+            try {
+                listener.onChanges(delivered);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Change listener failed to apply " + delivered.size() + " events", e);
+            }
+        }
+    }
 
+    /**
+     * Drops the events caused by the listener itself, a writer already holds its own change.
+     */
+    private static <K, V> List<ChangeEvent<K, V>> withoutOwnEvents(List<ChangeEvent<K, V>> events, ChangeListener<K, V> listener) {
+        boolean hasOwnEvents = false;
+        for (ChangeEvent<K, V> event : events) {
+            if (event.getOrigin() == listener) {
+                hasOwnEvents = true;
+                break;
+            }
+        }
+        if (!hasOwnEvents) return events;
+
+        List<ChangeEvent<K, V>> filtered = new ArrayList<>(events.size());
+        for (ChangeEvent<K, V> event : events) {
+            if (event.getOrigin() != listener) filtered.add(event);
+        }
+        return Collections.unmodifiableList(filtered);
+    }
 
 }
@@ -0,0 +1,29 @@
+package backingstore;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Value read from the backing store together with the version it was written at.
+ * Versions are assigned by the backing store and increase monotonically, so a cache
+ * can tell whether a loaded value is older than what it already holds.
+ */
+public class VersionedValue<V> implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    private final V value;
+    private final long version;
+
+    public VersionedValue(V value, long version) {
+        this.value = value;
+        this.version = version;
+    }
+
+    public V getValue() {
+        return this.value;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+}
@@ -7,11 +7,37 @@ public class CacheEntry<V> implements Serializable {
     @Serial
     private static final long serialVersionUID = 1L;
     final V value;
-    final long expiryTime;
+    /**
+     * Volatile and mutable so that expire after access can push it forward on a hit without replacing the entry.
+     */
+    volatile long expiryTime;
+    /**
+     * Backing store version of the value, 0 when unknown (e.g. a write back put).
+     */
+    final long version;
+    /**
+     * Last access time in System.nanoTime() units, used for LRU eviction.
+     * Kept on the entry so that a hit only writes a field instead of reordering a shared list.
+     */
+    volatile long accessTime;
+    /**
+     * Time the entry was queued in the RecencyQueue, only accessed under its lock.
+     */
+    long queuedTime;
 
     CacheEntry(V value, long expiryTime) {
+        this(value, expiryTime, 0L);
+    }
+
+    CacheEntry(V value, long expiryTime, long version) {
         this.value = value;
         this.expiryTime = expiryTime;
+        this.version = version;
+        this.accessTime = System.nanoTime();
+    }
+
+    void touch(long now) {
+        this.accessTime = now;
     }
 
     public V getValue() {
@@ -21,4 +47,12 @@ public class CacheEntry<V> implements Serializable {
     public long getExpiryTime() {
         return this.expiryTime;
     }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public long getAccessTime() {
+        return this.accessTime;
+    }
 }
@@ -2,6 +2,7 @@ package cache;
 
 import policy.EvictionPolicy;
 import policy.ExpirationStrategy;
+import policy.Expiry;
 
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -17,37 +18,274 @@ public class InMemoryCache<K,V> {
     private final ConcurrentHashMap<K, CacheEntry<V>> cache;
     private ExpirationStrategy expirationStrategy = ExpirationStrategy.TTL;
 
+    /**
+     * Optional per entry expiry, takes precedence over the expiration strategy when set.
+     */
+    private final Expiry<K,V> expiry;
+
+    /**
+     * Highest version the change feed reported for keys that were not cached, by a delete or an upsert,
+     * so that a load which read an older value cannot put it in afterwards. Bounded by capacity.
+     */
+    private final ConcurrentHashMap<K, Long> highWaterMarks;
+
+    /**
+     * Write order of the entries for LRU eviction, hits only stamp the entry's access time.
+     */
+    private final RecencyQueue<K,V> recencyQueue;
+
     private final int capacity;
 
     public InMemoryCache(int capacity, ExpirationStrategy expirationStrategy) {
+        this(capacity, expirationStrategy, null);
+    }
+
+    public InMemoryCache(int capacity, ExpirationStrategy expirationStrategy, Expiry<K,V> expiry) {
         this.capacity = capacity;
         this.expirationStrategy = expirationStrategy;
+        this.expiry = expiry;
         this.cache = new ConcurrentHashMap<>(capacity);
+        this.highWaterMarks = new ConcurrentHashMap<>();
+        this.recencyQueue = new RecencyQueue<>(capacity);
     }
 
+    /**
+     * Put without a ttl, the entry does not expire unless a per entry expiry says otherwise.
+     */
     public void put(K key, V value) {
-        cache.put(key, new CacheEntry<>(value, System.currentTimeMillis()));
+        put(key, value, Long.MAX_VALUE);
     }
 
     public void put(K key, V value, long ttl) {
-        if(this.expirationStrategy.equals(ExpirationStrategy.TTL)){
-            cache.put(key, new CacheEntry<>(value, System.currentTimeMillis() + ttl));
+        put(key, value, ttl, 0L);
+    }
+
+    /**
+     * Put of a value written through this cache, tagged with its backing store version.
+     * With a version the newer one wins, so of two racing write through puts the older can not stay cached.
+     * Version 0 (write back or an unversioned store) is unconditional.
+     */
+    public void put(K key, V value, long ttl, long version) {
+        if (version != 0L) {
+            putIfNewer(key, value, ttl, version);
+            return;
+        }
+        if (!highWaterMarks.isEmpty()) highWaterMarks.remove(key);
+        long now = System.currentTimeMillis();
+        CacheEntry<V> existing = cache.get(key);
+        long expiryTime = existing == null ? createExpiryTime(key, value, ttl, now) : updateExpiryTime(key, value, ttl, existing, now);
+        CacheEntry<V> created = new CacheEntry<>(value, expiryTime, version);
+        cache.put(key, created);
+        recencyQueue.offer(key, created, cache);
+    }
+
+    /**
+     * Puts a value loaded from the backing store unless the cache already holds
+     * the same or a newer version, or the change feed reported a newer version of the key.
+     * CAS loop instead of compute so that no lambda is allocated per call.
+     * Version 0 means the value is unversioned and is always stored.
+     * @return true if the value was stored
+     */
+    public boolean putIfNewer(K key, V value, long ttl, long version) {
+        if (isSuperseded(key, version)) return false;
+        long now = System.currentTimeMillis();
+        while (true) {
+            //Look first so that exactly one entry is built, for either the create or the replace branch
+            CacheEntry<V> existing = cache.get(key);
+            if (existing == null) {
+                CacheEntry<V> created = new CacheEntry<>(value, createExpiryTime(key, value, ttl, now), version);
+                if (cache.putIfAbsent(key, created) != null) continue;
+                recencyQueue.offer(key, created, cache);
+                return keepUnlessSuperseded(key, created);
+            }
+            if (isStale(existing, version)) return false;
+            CacheEntry<V> updated = new CacheEntry<>(value, updateExpiryTime(key, value, ttl, existing, now), version);
+            if (cache.replace(key, existing, updated)) {
+                recencyQueue.offer(key, updated, cache);
+                return keepUnlessSuperseded(key, updated);
+            }
+        }
+    }
+
+    /**
+     * A change event can be applied between the high water mark check and the write, in which case it
+     * found nothing cached to update or remove. Re-check after writing and undo the write if the feed
+     * reported a newer version; a mark not newer than the write is dropped. A mark equal to the version
+     * is an upsert of that very value, a delete never shares its version with a loadable value.
+     */
+    private boolean keepUnlessSuperseded(K key, CacheEntry<V> written) {
+        if (written.version == 0L || highWaterMarks.isEmpty()) return true;
+        Long highWaterMark = highWaterMarks.get(key);
+        if (highWaterMark == null) return true;
+        if (highWaterMark <= written.version) {
+            highWaterMarks.remove(key, highWaterMark);
+            return true;
+        }
+        cache.remove(key, written);
+        return false;
+    }
+
+    private boolean isSuperseded(K key, long version) {
+        if (version == 0L || highWaterMarks.isEmpty()) return false;
+        Long highWaterMark = highWaterMarks.get(key);
+        return highWaterMark != null && highWaterMark > version;
+    }
+
+    private void recordHighWaterMark(K key, long version) {
+        highWaterMarks.merge(key, version, Math::max);
+        if (highWaterMarks.size() > capacity) {
+            // Drop an arbitrary mark; only loads racing with that change are affected
+            K oldest = highWaterMarks.keySet().iterator().next();
+            if (!oldest.equals(key)) highWaterMarks.remove(oldest);
+        }
+    }
+
+    private static boolean isStale(CacheEntry<?> existing, long version) {
+        return version != 0L && existing.version >= version;
+    }
+
+    /**
+     * In place update of a cached key, used for change events. Keys not in the cache are not populated,
+     * their version is recorded as a high water mark instead so that an older load in flight is rejected.
+     * The mark is recorded before the key is found absent, so either the load sees it or this sees the load.
+     * @return true if the value was replaced
+     */
+    public boolean replaceIfNewer(K key, V value, long ttl, long version) {
+        long now = System.currentTimeMillis();
+        boolean recorded = false;
+        while (true) {
+            CacheEntry<V> existing = cache.get(key);
+            if (existing == null) {
+                if (recorded || version == 0L) return false;
+                recordHighWaterMark(key, version);
+                recorded = true;
+                continue;
+            }
+            if (isStale(existing, version)) return false;
+            CacheEntry<V> updated = new CacheEntry<>(value, updateExpiryTime(key, value, ttl, existing, now), version);
+            if (cache.replace(key, existing, updated)) {
+                recencyQueue.offer(key, updated, cache);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes the key if the cached value is older than the given version and remembers the version as a high water mark.
+     * @return true if an entry was removed
+     */
+    public boolean invalidate(K key, long version) {
+        recordHighWaterMark(key, version);
+        while (true) {
+            CacheEntry<V> existing = cache.get(key);
+            if (existing == null || existing.version >= version) return false;
+            if (cache.remove(key, existing)) return true;
+        }
+    }
+
+    /**
+     * Pushes the expiry of a hit entry forward for expire after access or a per entry expiry.
+     * Runs on every hit, so it only writes the entry's expiry field and never schedules anything;
+     * the write is skipped when the expiry is unchanged.
+     */
+    public void recordRead(K key, CacheEntry<V> entry, long now, long ttl) {
+        long expiryTime;
+        if (expiry != null) {
+            long currentDuration = entry.expiryTime - now;
+            long duration = expiry.expireAfterRead(key, entry.value, now, currentDuration);
+            if (duration == currentDuration) return;
+            expiryTime = saturatedAdd(now, duration);
+        } else if (expirationStrategy == ExpirationStrategy.ACCESS) {
+            expiryTime = saturatedAdd(now, ttl);
+        } else {
+            return;
+        }
+        if (entry.expiryTime != expiryTime) entry.expiryTime = expiryTime;
+    }
+
+    private long createExpiryTime(K key, V value, long ttl, long now) {
+        if (expiry != null) {
+            return saturatedAdd(now, expiry.expireAfterCreate(key, value, now));
+        }
+        return expiryTime(ttl, now);
+    }
+
+    private long updateExpiryTime(K key, V value, long ttl, CacheEntry<V> existing, long now) {
+        if (expiry != null) {
+            return saturatedAdd(now, expiry.expireAfterUpdate(key, value, now, existing.expiryTime - now));
+        }
+        return expiryTime(ttl, now);
+    }
+
+    private long expiryTime(long ttl, long now) {
+        if(this.expirationStrategy.equals(ExpirationStrategy.TTL) || this.expirationStrategy.equals(ExpirationStrategy.ACCESS)){
+            return saturatedAdd(now, ttl);
         }else if(this.expirationStrategy.equals(ExpirationStrategy.FIXED)){
-            cache.put(key, new CacheEntry<>(value,  ttl));
+            return ttl;
         }
+        return Long.MAX_VALUE;
+    }
 
+    private static long saturatedAdd(long now, long duration) {
+        long sum = now + duration;
+        //Overflow when both operands have the sign opposite to the result
+        if (((now ^ sum) & (duration ^ sum)) < 0) {
+            return duration > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return sum;
     }
 
     public CacheEntry<V> get(K key) {
         return cache.get(key);
     }
 
+    public boolean containsKey(K key) {
+        return cache.containsKey(key);
+    }
+
+    /**
+     * Removes the least recently used entry, amortized O(1).
+     * @return evicted key or null if the cache is empty
+     */
+    public K evictLeastRecentlyUsed() {
+        return recencyQueue.evict(cache);
+    }
+
+    /**
+     * Removes all entries that are expired at the given time.
+     * A hit may extend an ACCESS or per entry expiry while the sweep runs, so the expiry is re-read
+     * right before removal. A hit landing between that re-check and the removal still loses the entry;
+     * the next get then misses and loads it again.
+     * @return number of entries removed
+     */
+    public int removeExpired(long now) {
+        int removed = 0;
+        for (Map.Entry<K, CacheEntry<V>> e : cache.entrySet()) {
+            CacheEntry<V> entry = e.getValue();
+            if (now < entry.expiryTime) continue;
+            if (System.currentTimeMillis() >= entry.expiryTime && cache.remove(e.getKey(), entry)) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public Iterable<K> keys() {
+        return cache.keySet();
+    }
+
     public void remove(K key) {
         cache.remove(key);
     }
 
+    public void remove(K key, CacheEntry<V> entry) {
+        cache.remove(key, entry);
+    }
+
     public void clearCache() {
         cache.clear();
+        highWaterMarks.clear();
+        recencyQueue.clear();
     }
 
     public int size() {
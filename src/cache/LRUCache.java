@@ -2,82 +2,40 @@ package cache;
 
 import policy.EvictionPolicy;
 
-import java.util.LinkedHashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class LRUCache <K,V>{
     private final Logger logger = Logger.getLogger(LRUCache.class.getName());
     /**
-     * LinkedHashMap to store the key and value pair for LRU eviction policy.
+     * Cache whose entries are evicted. Recency is tracked by the cache's RecencyQueue and the access time
+     * on each CacheEntry, so a cache hit does not need to take a lock or reorder a LinkedHashMap.
      */
-    private LinkedHashMap<K, V> lruCache = null;
+    private final InMemoryCache<K, V> cache;
 
     private final int capacity;
     private final EvictionPolicy evictionPolicy;
 
-    private final Lock lock = new ReentrantLock();
-
-    public LRUCache(int capacity, EvictionPolicy evictionPolicy) {
+    public LRUCache(int capacity, EvictionPolicy evictionPolicy, InMemoryCache<K, V> cache) {
         this.capacity = capacity;
         this.evictionPolicy = evictionPolicy;
-        this.lruCache = new LinkedHashMap<K, V>(capacity, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(java.util.Map.Entry<K, V> eldest) {
-                return size() > capacity;
-            }
-        };
+        this.cache = cache;
     }
 
-    public K evictIfRequired(K key, V value){
+    /**
+     * Evicts the least recently used key if adding the given key would exceed capacity.
+     * @param key
+     * @return evicted key or null
+     */
+    public K evictIfRequired(K key){
         K evictedKey = null;
-
-
-            if (!lruCache.containsKey(key) && lruCache.size() >= capacity) {
-                try{
-                lock.lock();
-                evictedKey = lruCache.keySet().iterator().next();
-                lruCache.remove(evictedKey);
-                } finally {
-                    lock.unlock();
-                }
+        if (!cache.containsKey(key) && cache.size() >= capacity) {
+            evictedKey = cache.evictLeastRecentlyUsed();
+            if (evictedKey != null && logger.isLoggable(Level.INFO)) {
                 logger.info(evictedKey + " is evicted from LRU cache");
             }
-            lruCache.put(key, value);
-
-
-
-        return evictedKey;
-    }
-
-    public void put(K key, CacheEntry<V> entry) {
-        if(entry != null && System.currentTimeMillis() < entry.expiryTime){
-            try{
-                lock.lock();
-                lruCache.put(key, entry.value);
-            }finally {
-                lock.unlock();
-            }
-        }
-    }
-
-    public void remove(K key){
-        try{
-            lock.lock();
-            lruCache.remove(key);
-        }finally {
-            lock.unlock();
-        }
-    }
-
-    public void clearCache(){
-        try{
-            lock.lock();
-            lruCache.clear();
-        }finally {
-            lock.unlock();
         }
+        return evictedKey;
     }
 
 }
@@ -0,0 +1,131 @@
+package cache;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write ordered ring of cache entries used for LRU eviction, with a second chance (clock) for
+ * entries that were read after they were queued.
+ * A cache hit never touches the ring, it only stamps CacheEntry.accessTime; the stamp is compared
+ * with the time the entry was queued once it reaches the head. Entries that were replaced or removed
+ * stay in the ring and are skipped lazily, the ring is compacted in place when it fills up.
+ * Offer and evict are amortized O(1) and guarded by one lock that is only taken on writes.
+ */
+class RecencyQueue<K, V> {
+
+    private final Lock lock = new ReentrantLock();
+
+    private Object[] keys;
+    private Object[] entries;
+    private int head;
+    private int count;
+
+    RecencyQueue(int capacity) {
+        //Twice the capacity so that a compaction frees at least half the ring
+        int length = Math.max(16, capacity * 2);
+        this.keys = new Object[length];
+        this.entries = new Object[length];
+    }
+
+    /**
+     * Queues a newly written entry at the tail.
+     */
+    void offer(K key, CacheEntry<V> entry, ConcurrentHashMap<K, CacheEntry<V>> live) {
+        try{
+            lock.lock();
+            if (count == keys.length) compact(live);
+            append(key, entry);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the least recently used live entry from the given map.
+     * Entries read since they were queued are moved to the tail once instead of being evicted.
+     * @return evicted key or null if nothing could be evicted
+     */
+    @SuppressWarnings("unchecked")
+    K evict(ConcurrentHashMap<K, CacheEntry<V>> live) {
+        try{
+            lock.lock();
+            int secondChances = count;
+            while (count > 0) {
+                K key = (K) keys[head];
+                CacheEntry<V> entry = (CacheEntry<V>) entries[head];
+                keys[head] = null;
+                entries[head] = null;
+                head = (head + 1) % keys.length;
+                count--;
+
+                if (live.get(key) != entry) continue; // replaced or removed
+                if (entry.accessTime - entry.queuedTime > 0 && secondChances-- > 0) {
+                    append(key, entry);
+                    continue;
+                }
+                if (live.remove(key, entry)) return key;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        try{
+            lock.lock();
+            Arrays.fill(keys, null);
+            Arrays.fill(entries, null);
+            head = 0;
+            count = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(K key, CacheEntry<V> entry) {
+        int tail = (head + count) % keys.length;
+        keys[tail] = key;
+        entries[tail] = entry;
+        entry.queuedTime = System.nanoTime();
+        count++;
+    }
+
+    /**
+     * Drops replaced and removed entries in place, keeping the order of the rest.
+     * Grows the ring only if it is still full afterwards.
+     */
+    private void compact(ConcurrentHashMap<K, CacheEntry<V>> live) {
+        int length = keys.length;
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int from = (head + i) % length;
+            if (live.get(keys[from]) == entries[from]) {
+                int to = (head + kept) % length;
+                keys[to] = keys[from];
+                entries[to] = entries[from];
+                kept++;
+            }
+        }
+        for (int i = kept; i < count; i++) {
+            int index = (head + i) % length;
+            keys[index] = null;
+            entries[index] = null;
+        }
+        count = kept;
+
+        if (count == length) {
+            Object[] grownKeys = new Object[length * 2];
+            Object[] grownEntries = new Object[length * 2];
+            for (int i = 0; i < count; i++) {
+                grownKeys[i] = keys[(head + i) % length];
+                grownEntries[i] = entries[(head + i) % length];
+            }
+            keys = grownKeys;
+            entries = grownEntries;
+            head = 0;
+        }
+    }
+}
@@ -1,12 +1,20 @@
 package cache;
 
+import backingstore.BackingStore;
+import backingstore.ChangeEvent;
+import backingstore.ChangeListener;
+import backingstore.InMemoryBackingStore;
+import backingstore.VersionedValue;
 import config.CacheConfig;
+import policy.Expiry;
 import loader.BackStoreDataLoader;
 import scheduler.SchedulerService;
 import scheduler.SchedulerServiceImpl;
 
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class TurboCache <K,V> implements Serializable , Cache<K,V> {
@@ -22,15 +30,48 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
 
     private final long ttl;
 
+    /**
+     * True when the backing store publishes a change feed; per key refresh polling is then not scheduled.
+     */
+    private final boolean changeFeedEnabled;
+
+    /**
+     * Kept in a field so that puts can name themselves as origin without allocating a method reference,
+     * the store then does not echo the cache's own writes back to it.
+     */
+    private final ChangeListener<K,V> changeListener = this::applyChanges;
+
     public TurboCache(CacheConfig config) {
+        this(config, new InMemoryBackingStore<>(), null);
+    }
+
+    public TurboCache(CacheConfig config, Expiry<K,V> expiry) {
+        this(config, new InMemoryBackingStore<>(), expiry);
+    }
+
+    public TurboCache(CacheConfig config, BackingStore<K,V> backingStore) {
+        this(config, backingStore, null);
+    }
+
+    /**
+     * @param config
+     * @param backingStore store the cache loads from and writes to; without a change feed the cache polls it
+     * @param expiry per entry expiry, overrides the configured expiration strategy; null to use the strategy
+     */
+    public TurboCache(CacheConfig config, BackingStore<K,V> backingStore, Expiry<K,V> expiry) {
 
         this.ttl = config.getTtl();
 
-        this.cache = new InMemoryCache<>(config.getMaxSize(), config.getExpirationStrategy());
-        this.lruCache = new LRUCache<>(config.getMaxSize(), config.getEvictionPolicy());
+        this.cache = new InMemoryCache<>(config.getMaxSize(), config.getExpirationStrategy(), expiry);
+        this.lruCache = new LRUCache<>(config.getMaxSize(), config.getEvictionPolicy(), cache);
 
         this.scheduler = new SchedulerServiceImpl<>(config.getTtl(), config.getRefreshDuration());
-        this.dataLoader = new BackStoreDataLoader<>(config.getLoadingMode(), config.getWritePolicy());
+        this.dataLoader = new BackStoreDataLoader<>(config.getLoadingMode(), config.getWritePolicy(), backingStore);
+        this.changeFeedEnabled = dataLoader.subscribe(changeListener);
+
+        //One sweep for expired keys, and one refresh sweep when there is no change feed
+        scheduler.scheduleCleanup(cache);
+        if(!changeFeedEnabled) scheduler.scheduleRefresh(cache, dataLoader);
     }
 
 
@@ -38,7 +79,8 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
      * Method to put the key and value in the cache.
      * This method is synchronized to make it thread safe.
      * Adding data to back store
-     * Schedule cleanup and refresh for the key.
+     * Cleanup and refresh are handled by sweeps started in the constructor, so the cache side
+     * of a put allocates only the CacheEntry.
      * @param key
      * @param value
      */
@@ -46,22 +88,45 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
     public void put(K key, V value) {
 
         //STEP1 : Evict if required
-        K evictedKey = lruCache.evictIfRequired(key, value);
-
-        //STEP2: Remove from cache if evicted from LRU cache
-        if(evictedKey != null)  cache.remove(evictedKey);
+        lruCache.evictIfRequired(key);
 
-        //STEP2: Update cache
-        cache.put(key, value, ttl);
+        //STEP2: Update backing store based on write policy, it assigns the version of the value
+        long version = dataLoader.save(key, value, changeListener);
 
-        //STEP3: Update backing store based on write policy
-        dataLoader.save(key, value);
+        //STEP3: Update cache
+        cache.put(key, value, ttl, version);
+    }
 
-        //STEP4: Schedule cleaning expired keys from cache
-        scheduler.scheduleCleanup(key, cache);
+    /**
+     * Caches a value loaded from the backing store without writing it back.
+     * The value is dropped if the cache has seen a newer version of the key in the meantime.
+     */
+    private void putLoaded(K key, VersionedValue<V> loaded) {
+        lruCache.evictIfRequired(key);
+        cache.putIfNewer(key, loaded.getValue(), ttl, loaded.getVersion());
+    }
 
-        //STEP5: Schedule refresh for the key on regular interval
-        scheduler.scheduleRefresh(key, cache, dataLoader);
+    /**
+     * Applies a batch of backing store change events.
+     * Deletes invalidate the key, upserts update cached keys in place; keys that are not cached are not populated.
+     * Events older than the cached version are ignored.
+     * @param events
+     */
+    private void applyChanges(List<ChangeEvent<K,V>> events) {
+        int applied = 0;
+        for (ChangeEvent<K,V> event : events) {
+            K key = event.getKey();
+            if (event.getType() == ChangeEvent.Type.DELETE) {
+                if (cache.invalidate(key, event.getVersion())) {
+                    applied++;
+                }
+            } else if (cache.replaceIfNewer(key, event.getValue(), ttl, event.getVersion())) {
+                applied++;
+            }
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Applied " + applied + " of " + events.size() + " change events");
+        }
     }
 
 
@@ -74,7 +139,8 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
      * If the key is found in the cache, it will be returned from the cache.
      * If the key is expired, it will be removed from the cache and fetched from the backing store.
      * If the key is not found in the backing store, it will return null.
-     * Schedule cleanup at every time it get access.
+     * A hit allocates nothing: it reads the entry, stamps its access time for LRU
+     * and, for expire after access or a per entry expiry, moves its expiry forward.
      * @param key
      * @return
      */
@@ -85,19 +151,22 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
         CacheEntry<V> entry = cache.get(key);
         if(entry == null){
             //when there is any cache miss, get it from back store
-            V value = dataLoader.load(key);
-            if(value != null){
-                put(key, value);
+            VersionedValue<V> loaded = dataLoader.loadVersioned(key);
+            if(loaded == null){
+                return null;
             }
-            return value;
+            putLoaded(key, loaded);
+            return loaded.getValue();
         }
-        if(System.currentTimeMillis() < entry.getExpiryTime()){
-            //change the key's last access order
-            lruCache.put(key, entry);
+        long now = System.currentTimeMillis();
+        if(now < entry.getExpiryTime()){
+            //change the key's last access time
+            entry.touch(System.nanoTime());
+            cache.recordRead(key, entry, now, ttl);
             return entry.value;
         }else{
-            // Entry is expired, remove it from cache
-            cache.remove(key);
+            // Entry is expired, remove it from cache unless it was replaced meanwhile
+            cache.remove(key, entry);
         }
         return null;
     }
@@ -106,13 +175,11 @@ public class TurboCache <K,V> implements Serializable , Cache<K,V> {
     @Override
     public void remove(K key) {
         cache.remove(key);
-        lruCache.remove(key);
     }
 
     @Override
     public void clearCache() {
         cache.clearCache();
-        lruCache.clearCache();
     }
 
     @Override
@@ -1,6 +1,9 @@
 package loader;
 
+import backingstore.BackingStore;
+import backingstore.ChangeListener;
 import backingstore.InMemoryBackingStore;
+import backingstore.VersionedValue;
 import policy.LoadingMode;
 import policy.WritePolicy;
 
@@ -14,17 +17,23 @@ public class BackStoreDataLoader<K,V> {
     private final LoadingMode loadingMode;
     private final WritePolicy writePolicy;
 
-    InMemoryBackingStore<K, V> backingStore = new InMemoryBackingStore<>();
+    private final BackingStore<K, V> backingStore;
     private final transient ExecutorService asyncLoader = Executors.newSingleThreadExecutor();
 
-    Function<K, V> asyncLoaderFunction = key -> {
-        System.out.println("Loading data for key from back store in async mode: " + key);
-        return backingStore.load(key);
-    };
+    Function<K, V> asyncLoaderFunction;
 
     public BackStoreDataLoader(LoadingMode loadingMode, WritePolicy writePolicy) {
+        this(loadingMode, writePolicy, new InMemoryBackingStore<>());
+    }
+
+    public BackStoreDataLoader(LoadingMode loadingMode, WritePolicy writePolicy, BackingStore<K, V> backingStore) {
         this.loadingMode = loadingMode;
         this.writePolicy = writePolicy;
+        this.backingStore = backingStore;
+        this.asyncLoaderFunction = key -> {
+            System.out.println("Loading data for key from back store in async mode: " + key);
+            return backingStore.load(key);
+        };
     }
 
     public V load(K key) {
@@ -48,6 +57,23 @@ public class BackStoreDataLoader<K,V> {
         return null;
     }
 
+    /**
+     * Loads the value along with its backing store version, honouring the loading mode.
+     */
+    public VersionedValue<V> loadVersioned(K key) {
+        if (loadingMode == LoadingMode.ASYNC) {
+            CompletableFuture<VersionedValue<V>> future = CompletableFuture.supplyAsync(() -> backingStore.loadVersioned(key), asyncLoader);
+            try {
+                return future.get();
+            } catch (Exception e) {
+                return null;
+            }
+        } else if (loadingMode == LoadingMode.SYNC) {
+            return backingStore.loadVersioned(key);
+        }
+        return null;
+    }
+
     private V loadSync(K key){
         if(loadingMode == LoadingMode.SYNC) {
             return backingStore.load(key);
@@ -55,16 +81,34 @@ public class BackStoreDataLoader<K,V> {
         return null;
     }
 
-    public void save(K key, V value) {
+    public long save(K key, V value) {
+        return save(key, value, null);
+    }
+
+    /**
+     * Saves the value based on the write policy.
+     * @param origin change feed subscriber the write is made for, it does not receive its own change back
+     * @return version assigned by the backing store, or 0 when the write is deferred (write back)
+     */
+    public long save(K key, V value, ChangeListener<K, V> origin) {
         if(this.writePolicy.equals(WritePolicy.WRITE_THROUGH)){
-            backingStore.save(key, value);
+            return backingStore.saveVersioned(key, value, origin);
         } else if(this.writePolicy.equals(WritePolicy.WRITE_BACK)){
             CompletableFuture.runAsync(() -> {
-                backingStore.save(key, value);
+                backingStore.saveVersioned(key, value, origin);
             }, asyncLoader);
+            return 0L;
         } else {
             throw new IllegalArgumentException("Invalid write policy");
         }
 
     }
+
+    /**
+     * Subscribes to the backing store change feed.
+     * @return false if the backing store has no change feed
+     */
+    public boolean subscribe(ChangeListener<K, V> listener) {
+        return backingStore.subscribe(listener);
+    }
 }
@@ -1,7 +1,8 @@
 package policy;
 
 public enum ExpirationStrategy {
-    NONE,
-    TTL,
-    FIXED
+    NONE,   // Never expires
+    TTL,    // Expires ttl after write
+    FIXED,  // Expires at the fixed time given by ttl
+    ACCESS  // Expires ttl after last read or write
 }
@@ -0,0 +1,31 @@
+package policy;
+
+/**
+ * Per entry expiry callback. Each method returns how long, in milliseconds, the entry
+ * lives from {@code currentTime}; Long.MAX_VALUE means it never expires.
+ * When set on the cache it takes precedence over the configured ExpirationStrategy.
+ * Expired entries are dropped on read or by the cleanup sweep, which runs every configured ttl,
+ * so lifetimes much shorter than the ttl free memory only when the key is read again.
+ */
+public interface Expiry<K, V> {
+
+    /**
+     * Lifetime of a value that is added to the cache, either put or loaded from the backing store.
+     */
+    long expireAfterCreate(K key, V value, long currentTime);
+
+    /**
+     * Lifetime of a value that replaces a cached one. Defaults to the create lifetime.
+     */
+    default long expireAfterUpdate(K key, V value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    /**
+     * Lifetime of a value after a cache hit. Defaults to the remaining lifetime, i.e. reads do not extend it.
+     * Called on every hit, so implementations should not allocate.
+     */
+    default long expireAfterRead(K key, V value, long currentTime, long currentDuration) {
+        return currentDuration;
+    }
+}
@@ -3,10 +3,15 @@ package scheduler;
 import cache.InMemoryCache;
 import loader.BackStoreDataLoader;
 
-import java.util.function.Function;
-
 public interface SchedulerService<K,V> {
 
-    void scheduleCleanup(K key, InMemoryCache<K,V> cache);
-    void scheduleRefresh(K key, InMemoryCache<K,V> cache, BackStoreDataLoader<K,V> dataLoader);
+    /**
+     * Starts a single periodic task that removes expired entries from the cache.
+     */
+    void scheduleCleanup(InMemoryCache<K,V> cache);
+
+    /**
+     * Starts a single periodic task that refreshes every cached key from the backing store.
+     */
+    void scheduleRefresh(InMemoryCache<K,V> cache, BackStoreDataLoader<K,V> dataLoader);
 }
@@ -1,6 +1,7 @@
 package scheduler;
 
 
+import backingstore.VersionedValue;
 import cache.CacheEntry;
 import cache.InMemoryCache;
 import cache.LRUCache;
@@ -9,6 +10,7 @@ import loader.BackStoreDataLoader;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -29,33 +31,36 @@ public class SchedulerServiceImpl<K,V> implements SchedulerService<K, V> {
         this.scheduler = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
     }
 
+    /**
+     * Sweeps the whole cache at a fixed rate instead of scheduling a task per key,
+     * so a put does not allocate a ScheduledFuture.
+     * The sweep runs every ttl, capped at refreshDuration when ttl is not a duration (FIXED expiry).
+     */
     @Override
-    public void scheduleCleanup(K key, InMemoryCache<K,V> cache) {
-        scheduler.schedule(() -> {
-            CacheEntry<V> entry = cache.get(key);
-            if (entry != null) {
-                // Check if the entry is expired
-                if (System.currentTimeMillis() > entry.getExpiryTime()) {
-                    cache.remove(key);
-                    logger.info("Key " + key + " has been removed from the cache due to expiration.");
-                }
+    public void scheduleCleanup(InMemoryCache<K,V> cache) {
+        long period = ttl > 0 && ttl < refreshDuration ? ttl : refreshDuration;
+        scheduler.scheduleAtFixedRate(() -> {
+            int removed = cache.removeExpired(System.currentTimeMillis());
+            if (removed > 0 && logger.isLoggable(Level.INFO)) {
+                logger.info(removed + " keys have been removed from the cache due to expiration.");
             }
-        }, ttl, TimeUnit.MILLISECONDS);
+        }, period, period, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public void scheduleRefresh(K key, InMemoryCache<K,V> cache, BackStoreDataLoader<K,V> dataLoader) {
+    public void scheduleRefresh(InMemoryCache<K,V> cache, BackStoreDataLoader<K,V> dataLoader) {
         scheduler.scheduleAtFixedRate(() -> {
-            CacheEntry<V> entry = cache.get(key);
-            if (entry != null) {
+            for (K key : cache.keys()) {
+                CacheEntry<V> entry = cache.get(key);
+                if (entry == null) continue;
 
-                // Fetch data from backing store and update the cache
-                V newValue = dataLoader.load(key);
-                if (newValue != null && !newValue.equals(entry.getValue())) {
-                    cache.put(key, newValue);
+                // Fetch data from backing store and update the cache unless it already holds a newer version
+                VersionedValue<V> loaded = dataLoader.loadVersioned(key);
+                if (loaded != null && !loaded.getValue().equals(entry.getValue())
+                        && cache.replaceIfNewer(key, loaded.getValue(), ttl, loaded.getVersion())
+                        && logger.isLoggable(Level.INFO)) {
                     logger.info("Key " + key + " has been refreshed in the cache.");
                 }
-
             }
         }, refreshDuration, refreshDuration, TimeUnit.MILLISECONDS);
     }